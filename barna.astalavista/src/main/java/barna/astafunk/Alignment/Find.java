@@ -52,9 +52,6 @@ public class Find {
         // Creating a dynamic programming matrix object.
         DyPMatrix dyPMatrix = new DyPMatrix(aminoSequence, phmm);
 
-        //Initializing the cells of the matrix
-        dyPMatrix.initializeScoreMatrix();
-
         //align sequence
         if(!Astafunk.isLocal()){
             dyPMatrix.alignSequenceBnB();
@@ -2,6 +2,7 @@ package barna.astafunk.DP;
 
 import barna.astafunk.Astafunk;
 import barna.astafunk.HMM.ProfileHMM;
+import barna.astafunk.HMM.ScoringProfile;
 import barna.astafunk.Tsearch;
 import barna.astafunk.utils.FunkSettings;
 import barna.astafunk.utils.Utils;
@@ -21,79 +22,126 @@ import java.util.List;
 /**
  * This class describes a dynamic programming matrix
  * to search profile HMM against an amino acid sequence by Viterbi algorithm (see Durbin 1998).
+ * The recursions keep only two rows of the matrix in memory, the start of the path
+ * ending in a cell is propagated along with its score instead of tracing back
+ * through the matrix. Row buffers are reused by all matrices of a thread.
  */
 public class DyPMatrix {
 
     /**
-     * Horizontal or inserting score matrix.
+     * Row buffers of the dynamic programming recursions.
      */
-    private double [][] dpmatrix_h;
+    private static class Workspace {
 
-    /**
-     * Vertical or deleting score matrix.
-     */
-    private double [][] dpmatrix_v;
+        /**
+         * Match, insert and delete scores of the previous and the current row.
+         */
+        double[] dPrev, hPrev, vPrev, sPrev, dCur, hCur, vCur, sCur;
 
-    /**
-     * Diagonal or matching score matrix.
-     */
-    private double [][] dpmatrix_d;
+        /**
+         * Model and sequence position where the paths to the cells of the previous
+         * and the current row start.
+         */
+        int[] rowPrev, colPrev, rowCur, colCur;
 
-    /**
-     * The score matrix.
-     */
-    private DyPCell [][] dpmatrix_score;
+        /**
+         * Encoded residues.
+         */
+        byte[] residues = new byte[0];
 
-    /**
-     * N state, N-terminal unaligned sequence state.
-     * Emits on transition with K emission probabilities
-     * for K symbols in the alphabet.
-     */
-    private double[] seqstate_n;
+        /**
+         * Ensures rows of at least the given length.
+         * @param n number of cells per row
+         */
+        void ensureRows(int n) {
+            if (dPrev != null && dPrev.length >= n)
+                return;
+            dPrev = new double[n];
+            hPrev = new double[n];
+            vPrev = new double[n];
+            sPrev = new double[n];
+            dCur = new double[n];
+            hCur = new double[n];
+            vCur = new double[n];
+            sCur = new double[n];
+            rowPrev = new int[n];
+            colPrev = new int[n];
+            rowCur = new int[n];
+            colCur = new int[n];
+        }
+
+        /**
+         * Swaps the previous and the current row.
+         */
+        void swap() {
+            double[] d = dPrev; dPrev = dCur; dCur = d;
+            d = hPrev; hPrev = hCur; hCur = d;
+            d = vPrev; vPrev = vCur; vCur = d;
+            d = sPrev; sPrev = sCur; sCur = d;
+            int[] p = rowPrev; rowPrev = rowCur; rowCur = p;
+            p = colPrev; colPrev = colCur; colCur = p;
+        }
+
+        /**
+         * Encodes a sequence into the residue buffer.
+         * @param profile scoring profile
+         * @param sequence amino acid sequence
+         * @return Encoded residues.
+         */
+        byte[] encode(ScoringProfile profile, String sequence) {
+            if (residues.length < sequence.length())
+                residues = new byte[sequence.length()];
+            profile.encode(sequence, residues);
+            return residues;
+        }
+    }
 
     /**
-     * Begin state (for entering main model). Non-emitter.
+     * Buffers of the current thread.
      */
-    private double[] seqstate_b;
+    private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
 
     /**
-     *  End state (for exiting main model). Non-emitter.
+     * Input sequence. Amino acid sequence of transcript.
      */
-    private double[] seqstate_e;
+    private String sequence;
 
     /**
-     * C-terminal unaligned sequence state.
-     * Emits on transition with K emission probabilities
-     * for K symbols in the alphabet.
+     * Sequence length.
      */
-    private double[] seqstate_c;
+    private int sequenceLength;
 
     /**
-     * Joining segment unaligned sequence state.
-     * Emits on transition with K emission probabilities
-     * for K symbols in the alphabet.
+     * Number of states of a profile HMM.
      */
-    private double[] seqstate_j;
+    private int lengthHMM;
 
     /**
-     * Input sequence. Amino acid sequence of transcript.
+     * Number of possible hits.
      */
-    private String sequence;
+    private int nrHits;
 
     /**
-     * Sequence length.
+     * Scores of possible hits.
      */
-    private int sequenceLength;
+    private double[] hitScore = new double[16];
 
     /**
-     * Number of states of a profile HMM.
+     * Model position (row) where possible hits end, followed by the
+     * model position where they start.
      */
-    private int lengthHMM;
+    private int[] hitRows = new int[32];
 
     /**
-     * List of possible hits
+     * Sequence position (column) where possible hits end, followed by the
+     * sequence position where they start.
      */
-    private List<DyPCell> tempHits;
+    private int[] hitCols = new int[32];
 
     /**
      * Profile HMM.
@@ -114,22 +162,6 @@ public class DyPMatrix {
         this.hmm = hmm;
 
         this.lengthHMM = hmm.getLength();
-
-        this.dpmatrix_h = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_d = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_v = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_score = new DyPCell[lengthHMM+1][sequenceLength+1];
-
-        // states for entering, leaving and looping dp matrix
-        seqstate_n= new double[sequenceLength+ 1];
-        seqstate_b= new double[sequenceLength+ 1];
-        seqstate_e= new double[sequenceLength+ 1];
-        seqstate_c= new double[sequenceLength+ 1];
-        seqstate_j= new double[sequenceLength+ 1];
-
     }
 
     /**
@@ -138,50 +170,66 @@ public class DyPMatrix {
     public void initializeNewSequence(String newSequence){
         this.sequence = newSequence;
         this.sequenceLength = newSequence.length();
-
-        this.dpmatrix_h = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_d = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_v = new double[lengthHMM+1][sequenceLength+1];
-
-        this.dpmatrix_score = new DyPCell[lengthHMM+1][sequenceLength+1];
-
-        // states for entering, leaving and looping dp matrix
-        seqstate_n= new double[sequenceLength+ 1];
-        seqstate_b= new double[sequenceLength+ 1];
-        seqstate_e= new double[sequenceLength+ 1];
-        seqstate_c= new double[sequenceLength+ 1];
-        seqstate_j= new double[sequenceLength+ 1];
+        this.nrHits = 0;
     }
 
     /**
-     * Method to initialize dynamic programming score matrix.
+     * Adds a possible hit.
+     * @param score bit score of the cell
+     * @param row model position of the cell
+     * @param col sequence position of the cell
+     * @param startRow model position where the path to the cell starts
+     * @param startCol sequence position where the path to the cell starts
      */
-    public void initializeScoreMatrix(){
-        for(int i = 0; i < lengthHMM+1; i++){
-            for (int j = 0; j < sequenceLength+1; j++){
-                DyPCell c = new DyPCell(i,j);
-                dpmatrix_score[i][j] = c;
-            }
+    private void addHit(double score, int row, int col, int startRow, int startCol) {
+        if (nrHits == hitScore.length) {
+            double[] s = new double[2 * nrHits];
+            System.arraycopy(hitScore, 0, s, 0, nrHits);
+            hitScore = s;
+            int[] r = new int[4 * nrHits];
+            System.arraycopy(hitRows, 0, r, 0, 2 * nrHits);
+            hitRows = r;
+            int[] c = new int[4 * nrHits];
+            System.arraycopy(hitCols, 0, c, 0, 2 * nrHits);
+            hitCols = c;
         }
+        hitScore[nrHits] = score;
+        hitRows[2 * nrHits] = row;
+        hitRows[2 * nrHits + 1] = startRow;
+        hitCols[2 * nrHits] = col;
+        hitCols[2 * nrHits + 1] = startCol;
+        ++nrHits;
     }
 
     /**
      * Main DP recursion with Branch-and-bound approach and glocal search.
+     * The matrix is computed column by column, i.e. rows of the workspace
+     * hold the model positions of a sequence position.
      * see generic_fwdback.c and generic_viterbi.c
      */
     public void alignSequenceBnB(){
 
-        initializeScoreMatrix();
+        nrHits = 0;
 
-        tempHits = new ArrayList<DyPCell>(lengthHMM);
+        ScoringProfile profile = hmm.getScoringProfile();
+        double[] tsc = profile.getTransitionScores();
+        double[] msc = profile.getMatchScores();
+        double[] isc = profile.getInsertScores();
+        int size = profile.getSize();
+        final int T = ScoringProfile.TRANSITIONS;
 
-        double [][] stateMatrix = hmm.getStateTransitionMatrix(); // state transition
-        double [][] matchMatrix = hmm.getMatchEmissionMatrix();   // match emission
-        double [][] insertMatrix = hmm.getInsertEmissionMatrix(); // insert emission
+        Workspace w = WORKSPACE.get();
+        w.ensureRows(lengthHMM + 1);
+        byte[] residues = w.encode(profile, sequence);
 
-        String alphabet = new String(hmm.getAlphabet()); // char[] -> String
+        // model configured for sequence length, without changing the shared model
+        double nLoop = profile.getLoopScore(sequenceLength), jLoop = nLoop;
+        double nMove = profile.getMoveScore(sequenceLength), jMove = nMove;
+        double eLoop = hmm.xsc[ProfileHMM.E][ProfileHMM.LOOP];
+
+        double laScore= -FunkSettings.INF; //Glocal
+        double lengthScore = Utils.prob2LogOdd(sequenceLength);
+        double ga2 = hmm.getGa2();
 
         double horizontalScore1;
         double horizontalScore2;
@@ -192,200 +240,125 @@ public class DyPMatrix {
         double verticalScore1;
         double verticalScore2;
 
-        // reconfig model for sequence length
-        hmm.reconfigLength(sequenceLength);
+        // S->N, p=1; S->N->B, no N-tail; join here
+        double stateN = 0, stateB = nMove, stateJ = -FunkSettings.INF;
 
-        double laScore= -FunkSettings.INF; //Glocal
-        double p1 = 0.997151; // null transition probability (hmmer3.1 code)
+        // init/block extension of first column => require extended state transition
+        for(int i = 0; i < lengthHMM + 1; i++) {
+            w.dPrev[i] = w.hPrev[i] = w.vPrev[i] = w.sPrev[i] = -FunkSettings.INF;
+            w.rowPrev[i] = i;
+            w.colPrev[i] = 0;
+        }
 
-        // S->N, p=1
-        seqstate_n[0]= 0;
+        for(int j = 1; j < sequenceLength+ 1; j++){
 
-        // S->N->B, no N-tail
-        seqstate_b[0]= hmm.xsc[ProfileHMM.N][ProfileHMM.MOVE];
+            double[] dPrev = w.dPrev, hPrev = w.hPrev, vPrev = w.vPrev, sPrev = w.sPrev;
+            double[] dCur = w.dCur, hCur = w.hCur, vCur = w.vCur, sCur = w.sCur;
+            int[] rowPrev = w.rowPrev, colPrev = w.colPrev, rowCur = w.rowCur, colCur = w.colCur;
 
-        // block end, c-term, join here
-        seqstate_e[0]= seqstate_c[0]= seqstate_j[0]= -FunkSettings.INF;
+            // init/block extension of first line => require extended state transition
+            dCur[0] = hCur[0] = vCur[0] = sCur[0] = -FunkSettings.INF;
+            rowCur[0] = 0;
+            colCur[0] = j;
 
-        // init/block extension of first column => require extended state transition
-        for(int i = 0; i < lengthHMM + 1; i++) {
-            dpmatrix_d[i][0] =  dpmatrix_h[i][0] = dpmatrix_v[i][0] = -FunkSettings.INF;
-            dpmatrix_score[i][0].setScore(-FunkSettings.INF);
-        }
+            // states of this column are only updated for cells that are not pruned
+            double curN = 0, curB = 0, curJ = 0;
 
-        char [] aminoacid = sequence.toCharArray();
-        double [] nullProbArray = hmm.getNullModel();
+            int a = residues[j - 1]; // index of amino acid
 
-        for(int j = 1; j < sequenceLength+ 1; j++){
             for(int i = 1; i < lengthHMM + 1; i++){
 
-                // init/block extension of first line => require extended state transition
-                dpmatrix_d[0][j] = dpmatrix_h[0][j] = dpmatrix_v[0][j] = -FunkSettings.INF;
-                dpmatrix_score[0][j].setScore(-FunkSettings.INF);
-                seqstate_e[j]= -FunkSettings.INF;
-
-                char alpha = aminoacid[j-1];
-                int AA = alphabet.indexOf(alpha); // index of amino acid
-                double nullProb = nullProbArray[AA]*p1;
-
-                if(Double.isNaN(dpmatrix_score[i-1][j].getScore()) && Double.isNaN(dpmatrix_score[i-1][j-1].getScore())
-                        && Double.isNaN(dpmatrix_score[i][j-1].getScore())){
-                    dpmatrix_score[i][j].setScore(Double.NaN);
-                    dpmatrix_v[i][j] = Double.NaN;
-                    dpmatrix_h[i][j] = Double.NaN;
-                    dpmatrix_d[i][j] = Double.NaN;
+                if(Double.isNaN(sCur[i-1]) && Double.isNaN(sPrev[i-1]) && Double.isNaN(sPrev[i])){
+                    sCur[i] = vCur[i] = hCur[i] = dCur[i] = Double.NaN;
+                    rowCur[i] = i;
+                    colCur[i] = j;
                     continue;
                 }
 
-                // Diagonal scores
-                if(Double.isNaN(dpmatrix_d[i-1][j-1])){
-                    diagonalScore1 = Double.NaN;
-                }
-                else{
-                    diagonalScore1 = dpmatrix_d[i-1][j-1]
-                            + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.MM]); // m -> m
-                }
-
-                if(Double.isNaN(dpmatrix_h[i-1][j-1])){
-                    diagonalScore2 = Double.NaN;
-                }
-                else{
-                    diagonalScore2 = dpmatrix_h[i-1][j-1]
-                        + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.IM]);  // i -> m
-                }
+                int t = (i - 1) * T;
 
+                // Diagonal scores, NaN propagates
+                diagonalScore1 = dPrev[i-1] + tsc[t + ProfileHMM.MM]; // m -> m
+                diagonalScore2 = hPrev[i-1] + tsc[t + ProfileHMM.IM]; // i -> m
+                diagonalScore3 = vPrev[i-1] + tsc[t + ProfileHMM.DM]; // d -> m
 
-                if(Double.isNaN(dpmatrix_v[i-1][j-1])){
-                    diagonalScore3 = Double.NaN;
-                }
-                else{
-                    diagonalScore3 = dpmatrix_v[i-1][j-1]
-                            +  Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.DM]); // d -> m
-
-                }
                 // BM transition value stored before first node in the place of MM
-                if(Double.isNaN(seqstate_b[j-1])){
+                if(Double.isNaN(stateB)){
                     diagonalScore4 = Double.NaN;
                 }
                 else{
-                    // We should have a array of B->Mk transitions              
                    if (i > 1)
                        diagonalScore4= -FunkSettings.INF; // block B -> M_x transitions for all x>1
                    else
-                       diagonalScore4 = seqstate_b[j - 1] + Utils.prob2LogOdd(stateMatrix[0][ProfileHMM.MM]); // b -> m
-
+                       diagonalScore4 = stateB + tsc[ProfileHMM.MM]; // b -> m
                 }
 
                 double maxDiagonal = Utils.maxWithNaN(diagonalScore1, diagonalScore2, diagonalScore3, diagonalScore4);
-                dpmatrix_d[i][j] = Utils.prob2LogOdd(matchMatrix[i][AA], nullProb) + maxDiagonal;
-                seqstate_e[j] = Utils.maxWithNaN(seqstate_e[j], dpmatrix_d[i][j] + laScore);
-
+                double d = msc[i * size + a] + maxDiagonal;
+                double stateE = Utils.maxWithNaN(-FunkSettings.INF, d + laScore);
 
                 // Horizontal scores => Insertion
-                if(Double.isNaN(dpmatrix_d[i][j-1])){
-                    horizontalScore1 = Double.NaN;
-                }
-                else{
-                    horizontalScore1 =  dpmatrix_d[i][j-1] + Utils.prob2LogOdd(stateMatrix[i][ProfileHMM.MI]); // m -> i
-                }
-
-
-                if(Double.isNaN(dpmatrix_h[i][j-1])){
-                    horizontalScore2 = Double.NaN;
-                }
-                else{
-                    horizontalScore2 = dpmatrix_h[i][j-1] + Utils.prob2LogOdd(stateMatrix[i][ProfileHMM.II]);  // i -> i
-                }
-
-                double maxHorizontal = Utils.maxWithNaN(horizontalScore1, horizontalScore2);
-
+                double h;
                 if (i== lengthHMM){
-                    dpmatrix_h[i][j] = -FunkSettings.INF;    // last row, force to go to E
+                    h = -FunkSettings.INF;    // last row, force to go to E
                 }
                 else{
-                    dpmatrix_h[i][j] = Utils.prob2LogOdd(insertMatrix[i][AA], nullProb) +
-                            maxHorizontal;
+                    horizontalScore1 = dPrev[i] + tsc[i * T + ProfileHMM.MI]; // m -> i
+                    horizontalScore2 = hPrev[i] + tsc[i * T + ProfileHMM.II]; // i -> i
+                    h = isc[i * size + a] + Utils.maxWithNaN(horizontalScore1, horizontalScore2);
                 }
 
-
                 // Vertical scores => Deletion
-                if(Double.isNaN(dpmatrix_v[i-1][j])){
-                    verticalScore1 = Double.NaN;
-                }
-                else{
-                    verticalScore1 = dpmatrix_v[i-1][j] + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.DD]);    // d -> d
-                }
-
-                if(Double.isNaN(dpmatrix_d[i-1][j])){
-                    verticalScore2 = Double.NaN;
-                }
-                else{
-                    verticalScore2 = dpmatrix_d[i-1][j] + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.MD]);   // m -> d
-                }
-
-
-                double maxVertical = Utils.maxWithNaN(verticalScore1, verticalScore2);
-                dpmatrix_v[i][j] = maxVertical;
-
-
-                if(!Double.isNaN(dpmatrix_v[i][j]) && dpmatrix_v[i][j]  // d->m->m->m->...
-                        + hmm.getOptimumScoreArray(i, j, sequenceLength)  - Utils.prob2LogOdd(sequence.length()) < hmm.getGa2()){
-                    dpmatrix_v[i][j] = Double.NaN;
-
-                }
-
-                if(!Double.isNaN(dpmatrix_h[i][j]) && dpmatrix_h[i][j]  // I->m->m->m->...
-                        + hmm.getOptimumScoreArray(i, j, sequenceLength) - Utils.prob2LogOdd(sequence.length()) < hmm.getGa2()){
-                    dpmatrix_h[i][j] = Double.NaN;
-
-                }
-
-                if(!Double.isNaN(dpmatrix_d[i][j]) && dpmatrix_d[i][j]  // M->m->m->m->...
-                        + hmm.getOptimumScoreArray(i, j, sequenceLength) - Utils.prob2LogOdd(sequence.length()) < hmm.getGa2()){
-                    dpmatrix_d[i][j] = Double.NaN;
-
-                }
-
-                double maxx = Utils.maxWithNaN(dpmatrix_v[i][j], dpmatrix_h[i][j], dpmatrix_d[i][j]);
-                dpmatrix_score[i][j].setScore(maxx);
-
-                if (maxx == dpmatrix_h[i][j]){
-                    dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i][j-1]);
-
-                }else if (maxx== dpmatrix_v[i][j]){
-                    dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i-1][j]);
-
+                verticalScore1 = vCur[i-1] + tsc[t + ProfileHMM.DD];    // d -> d
+                verticalScore2 = dCur[i-1] + tsc[t + ProfileHMM.MD];   // m -> d
+                double v = Utils.maxWithNaN(verticalScore1, verticalScore2);
+
+                // bound on the score of the best completion
+                double optimum = hmm.getOptimumScoreArray(i, j, sequenceLength);
+                if(!Double.isNaN(v) && v + optimum - lengthScore < ga2)   // d->m->m->m->...
+                    v = Double.NaN;
+                if(!Double.isNaN(h) && h + optimum - lengthScore < ga2)   // I->m->m->m->...
+                    h = Double.NaN;
+                if(!Double.isNaN(d) && d + optimum - lengthScore < ga2)   // M->m->m->m->...
+                    d = Double.NaN;
+
+                dCur[i] = d;
+                hCur[i] = h;
+                vCur[i] = v;
+
+                double maxx = Utils.maxWithNaN(v, h, d);
+                sCur[i] = maxx;
+
+                if (maxx == h){
+                    rowCur[i] = rowPrev[i];
+                    colCur[i] = colPrev[i];
+                }else if (maxx == v){
+                    rowCur[i] = rowCur[i-1];
+                    colCur[i] = colCur[i-1];
                 }else if (maxDiagonal != diagonalScore4){   // no B->M transition
-                        dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i-1][j-1]);
+                    rowCur[i] = rowPrev[i-1];
+                    colCur[i] = colPrev[i-1];
+                }else{
+                    rowCur[i] = i;
+                    colCur[i] = j;
                 }
 
-                // E (End) state update, only relevant for isGlocal alignment                    
-                seqstate_e[j] = Utils.maxWithNaN(seqstate_e[j], dpmatrix_d[i][j],
-                            dpmatrix_v[i][j]) + (i == lengthHMM ? laScore : 0);   // last row or isGlocal alignment
-
-                // update Join, C-term, N-term, Begin states
-                // J state
-                seqstate_j[j]= Utils.maxWithNaN(seqstate_j[j- 1]+ hmm.xsc[ProfileHMM.J][ProfileHMM.LOOP],
-                        seqstate_e[j]+ hmm.xsc[ProfileHMM.E][ProfileHMM.LOOP]);
-
-                // C state
-                seqstate_c[j] = Utils.maxWithNaN(seqstate_c[j-1] + hmm.xsc[ProfileHMM.C][ProfileHMM.LOOP],
-                        seqstate_e[j] + hmm.xsc[ProfileHMM.E][ProfileHMM.MOVE]);
-                
-                // N state
-                seqstate_n[j] = seqstate_n[j-1] + hmm.xsc[ProfileHMM.N][ProfileHMM.LOOP];
+                // E (End) state update, only relevant for isGlocal alignment
+                stateE = Utils.maxWithNaN(stateE, d, v) + (i == lengthHMM ? laScore : 0);
 
-                // B state
-                seqstate_b[j] = Utils.maxWithNaN(seqstate_n[j] + hmm.xsc[ProfileHMM.N][ProfileHMM.MOVE],seqstate_j[j] +
-                        hmm.xsc[ProfileHMM.J][ProfileHMM.MOVE]);
+                // update Join, N-term, Begin states
+                curJ = Utils.maxWithNaN(stateJ + jLoop, stateE + eLoop);
+                curN = stateN + nLoop;
+                curB = Utils.maxWithNaN(curN + nMove, curJ + jMove);
 
+                if(i == lengthHMM && !Double.isNaN(maxx) && maxx - lengthScore >= ga2)
+                    addHit(maxx, i, j, rowCur[i], colCur[i]);
+            } // end iterating model
 
-                if(i == lengthHMM && !Double.isNaN(dpmatrix_score[i][j].getScore())){
-                    if(dpmatrix_score[i][j].getScore() - Utils.prob2LogOdd(sequence.length()) >= hmm.getGa2()){
-                        tempHits.add(dpmatrix_score[i][j]);
-                    }
-                }
-            } // end iterating model            
+            stateN = curN;
+            stateB = curB;
+            stateJ = curJ;
+            w.swap();
         }
     }
 
@@ -395,15 +368,28 @@ public class DyPMatrix {
      */
     public void alignSequenceLocal(){
 
-        initializeScoreMatrix();
+        nrHits = 0;
 
-        tempHits = new ArrayList<DyPCell>(lengthHMM);
+        ScoringProfile profile = hmm.getScoringProfile();
+        double[] tsc = profile.getTransitionScores();
+        double[] msc = profile.getMatchScores();
+        double[] isc = profile.getInsertScores();
+        int size = profile.getSize();
+        final int T = ScoringProfile.TRANSITIONS;
 
-        double [][] stateMatrix = hmm.getStateTransitionMatrix(); // state transition
-        double [][] matchMatrix = hmm.getMatchEmissionMatrix();   // match emission
-        double [][] insertMatrix = hmm.getInsertEmissionMatrix(); // insert emission
+        Workspace w = WORKSPACE.get();
+        w.ensureRows(sequenceLength + 1);
+        byte[] residues = w.encode(profile, sequence);
 
-        String alphabet = new String(hmm.getAlphabet()); // char[] -> String
+        // model configured for sequence length, without changing the shared model
+        double nLoop = profile.getLoopScore(sequenceLength), jLoop = nLoop;
+        double nMove = profile.getMoveScore(sequenceLength), jMove = nMove;
+        double eLoop = hmm.xsc[ProfileHMM.E][ProfileHMM.LOOP];
+
+        double laScore= 0; // isGlocal is always false
+        double lengthScore = Utils.prob2LogOdd(sequenceLength);
+        double ga2 = hmm.getGa2();
+        double bm = tsc[ProfileHMM.MM];
 
         double horizontalScore1;
         double horizontalScore2;
@@ -414,130 +400,99 @@ public class DyPMatrix {
         double verticalScore1;
         double verticalScore2;
 
-        // reconfig model for sequence length
-        hmm.reconfigLength(sequenceLength);
-
-        // flag for isGlocal alignment
-
-        double laScore= 0; // isGlocal is always false
-
-        double p1 = 0.997151;
-
-
-        // Init
-        seqstate_n[0]= 0;   // S->N, p=1
-        seqstate_b[0]= hmm.xsc[ProfileHMM.N][ProfileHMM.MOVE]; // S->N->B, no N-tail
-        seqstate_e[0]= seqstate_c[0]= seqstate_j[0]= -FunkSettings.INF;  // block end, c-term, join here
-
-        dpmatrix_score[0][0].setScore(-FunkSettings.INF);
-
-        // init/block extension of first column => require extended state transition
-        for(int i = 0; i < lengthHMM + 1; i++) {
-            dpmatrix_d[i][0] =  dpmatrix_h[i][0] = dpmatrix_v[i][0] = -FunkSettings.INF;
-            dpmatrix_score[i][0].setScore(-FunkSettings.INF);
+        // init/block extension of first line => require extended state transition
+        for(int j = 0; j < sequenceLength + 1; j++) {
+            w.dPrev[j] = w.hPrev[j] = w.vPrev[j] = -FunkSettings.INF;
+            w.rowPrev[j] = 0;
+            w.colPrev[j] = j;
         }
 
-
-        char [] aminoacid = sequence.toCharArray();
-
-        double [] nullProbArray = hmm.getNullModel();
-
         for(int i = 1; i < lengthHMM + 1; i++){
 
-            for(int j = 1; j < sequenceLength+ 1; j++){
+            double[] dPrev = w.dPrev, hPrev = w.hPrev, vPrev = w.vPrev;
+            double[] dCur = w.dCur, hCur = w.hCur, vCur = w.vCur;
+            int[] rowPrev = w.rowPrev, colPrev = w.colPrev, rowCur = w.rowCur, colCur = w.colCur;
 
-                // init/block extension of first line => require extended state transition
+            // init/block extension of first column => require extended state transition
+            dCur[0] = hCur[0] = vCur[0] = -FunkSettings.INF;
+            rowCur[0] = i;
+            colCur[0] = 0;
 
-                dpmatrix_d[0][j] = dpmatrix_h[0][j] = dpmatrix_v[0][j] = -FunkSettings.INF;
+            // S->N, p=1; S->N->B, no N-tail; join here
+            double stateN = 0, stateB = nMove, stateJ = -FunkSettings.INF;
 
-                dpmatrix_score[0][j].setScore(-FunkSettings.INF);
+            int t = (i - 1) * T;
+            double mm = tsc[t + ProfileHMM.MM], im = tsc[t + ProfileHMM.IM], dm = tsc[t + ProfileHMM.DM];
+            double dd = tsc[t + ProfileHMM.DD], md = tsc[t + ProfileHMM.MD];
+            double mi = tsc[i * T + ProfileHMM.MI], ii = tsc[i * T + ProfileHMM.II];
+            int e = i * size;
 
-                seqstate_e[j]= -FunkSettings.INF;
-
-                char alpha = aminoacid[j-1];
-
-                int AA = alphabet.indexOf(alpha); // index of amino acid
+            for(int j = 1; j < sequenceLength+ 1; j++){
 
-                double nullProb = nullProbArray[AA]*p1;
+                int a = residues[j - 1]; // index of amino acid
 
                 // Diagonal scores
-                diagonalScore1 = dpmatrix_d[i-1][j-1]
-                            + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.MM]); // m -> m
-
-                diagonalScore2 = dpmatrix_h[i-1][j-1]
-                            + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.IM]);  // i -> m
-
-                    diagonalScore3 = dpmatrix_v[i-1][j-1]
-                            +  Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.DM]); // d -> m
+                diagonalScore1 = dPrev[j-1] + mm; // m -> m
+                diagonalScore2 = hPrev[j-1] + im; // i -> m
+                diagonalScore3 = vPrev[j-1] + dm; // d -> m
 
                 // BM transition value stored before first node in the place of MM
-                diagonalScore4 = seqstate_b[j - 1] + Utils.prob2LogOdd(stateMatrix[0][ProfileHMM.MM]); // b -> m
+                diagonalScore4 = stateB + bm; // b -> m
 
                 double maxDiagonal = Utils.maxWithNaN(diagonalScore1, diagonalScore2, diagonalScore3, diagonalScore4);
 
-                dpmatrix_d[i][j] = Utils.prob2LogOdd(matchMatrix[i][AA], nullProb) + maxDiagonal;
-                seqstate_e[j] = Utils.maxWithNaN(seqstate_e[j], dpmatrix_d[i][j] + laScore);
+                double d = msc[e + a] + maxDiagonal;
+                double stateE = Utils.maxWithNaN(-FunkSettings.INF, d + laScore);
 
                 // Horizontal scores => Insertion
-                horizontalScore1 =  dpmatrix_d[i][j-1] + Utils.prob2LogOdd(stateMatrix[i][ProfileHMM.MI]); // m -> i
-                horizontalScore2 = dpmatrix_h[i][j-1] + Utils.prob2LogOdd(stateMatrix[i][ProfileHMM.II]);  // i -> i
-
-                double maxHorizontal = Utils.maxWithNaN(horizontalScore1, horizontalScore2);
-
+                double h;
                 if (i== lengthHMM){
-                    dpmatrix_h[i][j] = -FunkSettings.INF;    // last row, force to go to E
+                    h = -FunkSettings.INF;    // last row, force to go to E
                 }
                 else{
-                    dpmatrix_h[i][j] = Utils.prob2LogOdd(insertMatrix[i][AA], nullProb) +
-                            maxHorizontal;
+                    horizontalScore1 = dCur[j-1] + mi; // m -> i
+                    horizontalScore2 = hCur[j-1] + ii; // i -> i
+                    h = isc[e + a] + Utils.maxWithNaN(horizontalScore1, horizontalScore2);
                 }
 
                 // Vertical scores => Deletion
-                verticalScore1 = dpmatrix_v[i-1][j] + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.DD]);    // d -> d
-                verticalScore2 = dpmatrix_d[i-1][j] + Utils.prob2LogOdd(stateMatrix[i - 1][ProfileHMM.MD]);   // m -> d
-
-                double maxVertical = Utils.maxWithNaN(verticalScore1, verticalScore2);
-                dpmatrix_v[i][j] = maxVertical;
-
-                double maxx = Utils.maxWithNaN(dpmatrix_v[i][j], dpmatrix_h[i][j], dpmatrix_d[i][j]);
-                dpmatrix_score[i][j].setScore(maxx);
-
-                if (maxx == dpmatrix_h[i][j]){
-                    dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i][j-1]);
-
-                }else if (maxx== dpmatrix_v[i][j]){
-                    dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i-1][j]);
-
+                verticalScore1 = vPrev[j] + dd;    // d -> d
+                verticalScore2 = dPrev[j] + md;   // m -> d
+                double v = Utils.maxWithNaN(verticalScore1, verticalScore2);
+
+                dCur[j] = d;
+                hCur[j] = h;
+                vCur[j] = v;
+
+                double maxx = Utils.maxWithNaN(v, h, d);
+
+                if (maxx == h){
+                    rowCur[j] = rowCur[j-1];
+                    colCur[j] = colCur[j-1];
+                }else if (maxx == v){
+                    rowCur[j] = rowPrev[j];
+                    colCur[j] = colPrev[j];
                 }else if (maxDiagonal != diagonalScore4){   // no B->M transition
-                    dpmatrix_score[i][j].setPrevCell(dpmatrix_score[i-1][j-1]);
+                    rowCur[j] = rowPrev[j-1];
+                    colCur[j] = colPrev[j-1];
+                }else{
+                    rowCur[j] = i;
+                    colCur[j] = j;
                 }
 
                 // E (End) state update, only relevant for isGlocal alignment
-                seqstate_e[j] = Utils.maxWithNaN(seqstate_e[j], dpmatrix_d[i][j],
-                        dpmatrix_v[i][j]) + (i == lengthHMM ? laScore : 0);   // last row or isGlocal alignment
-
-                // update Join, C-term, N-term, Begin states
-                // J state
-
-                seqstate_j[j]= Utils.maxWithNaN(seqstate_j[j- 1]+ hmm.xsc[ProfileHMM.J][ProfileHMM.LOOP],
-                        seqstate_e[j]+ hmm.xsc[ProfileHMM.E][ProfileHMM.LOOP]);
+                stateE = Utils.maxWithNaN(stateE, d, v) + (i == lengthHMM ? laScore : 0);
 
-                // C state
-                seqstate_c[j] = Utils.maxWithNaN(seqstate_c[j-1] + hmm.xsc[ProfileHMM.C][ProfileHMM.LOOP],
-                        seqstate_e[j] + hmm.xsc[ProfileHMM.E][ProfileHMM.MOVE]);
-                // N state
-                seqstate_n[j] = seqstate_n[j-1] + hmm.xsc[ProfileHMM.N][ProfileHMM.LOOP];
+                // update Join, N-term, Begin states
+                stateJ = Utils.maxWithNaN(stateJ + jLoop, stateE + eLoop);
+                stateN = stateN + nLoop;
+                stateB = Utils.maxWithNaN(stateN + nMove, stateJ + jMove);
 
-                // B state
-                seqstate_b[j] = Utils.maxWithNaN(seqstate_n[j] + hmm.xsc[ProfileHMM.N][ProfileHMM.MOVE],seqstate_j[j] +
-                        hmm.xsc[ProfileHMM.J][ProfileHMM.MOVE]);
+                if(!Double.isNaN(maxx) && maxx - lengthScore >= ga2)
+                    addHit(maxx, i, j, rowCur[j], colCur[j]);
+            } // end iterating sequence
 
-                if(!Double.isNaN(dpmatrix_score[i][j].getScore())){
-                    if(dpmatrix_score[i][j].getScore() - Utils.prob2LogOdd(sequence.length()) >= hmm.getGa2()){
-                        tempHits.add(dpmatrix_score[i][j]);
-                    }
-                }
-            } // end iterating model
+            w.swap();
         }
     }
     /**
@@ -557,9 +512,9 @@ public class DyPMatrix {
         if(hitList == null)
             hitList = new ArrayList<Hit>();
 
-        for(DyPCell c: tempHits){
-            if(!Double.isNaN(c.getScore()))
-                hitList = scorePath(hitList, downPosition, c, t, groupID, eventRegions, firstSource, lastSink);
+        for(int k = 0; k < nrHits; k++){
+            if(!Double.isNaN(hitScore[k]))
+                hitList = scorePath(hitList, downPosition, k, t, groupID, eventRegions, firstSource, lastSink);
         }
         return hitList;
     }
@@ -569,9 +524,9 @@ public class DyPMatrix {
         if(hitList == null)
             hitList = new ArrayList<Hit>();
 
-        for(DyPCell c: tempHits){
-            if(!Double.isNaN(c.getScore()))
-                hitList = scoreConstitutiveHitPath(hitList, c, t, events);
+        for(int k = 0; k < nrHits; k++){
+            if(!Double.isNaN(hitScore[k]))
+                hitList = scoreConstitutiveHitPath(hitList, k, t, events);
         }
         return hitList;
     }
@@ -581,7 +536,7 @@ public class DyPMatrix {
      * the track.
      * @param hitList List of possible non-overlapped hits.
      * @param downPosition A integer N that is the position in the sequence where starts the aligment.
-     * @param c The cell with possible end alignment position
+     * @param k Index of the possible hit
      * @param t Reference transcript of a variant
      * @param groupID String of concatenated gene/transcript IDs representing a variant
      * @param eventRegions List of coordinates of AS regions
@@ -589,25 +544,22 @@ public class DyPMatrix {
      * @param lastSink Last sink of variant
      * @return List of possible hits
      */
-    public List<Hit> scorePath(List<Hit> hitList, int downPosition, DyPCell c, Transcript t,
+    public List<Hit> scorePath(List<Hit> hitList, int downPosition, int k, Transcript t,
                                               String groupID, DirectedRegion[] eventRegions, int firstSource, int lastSink){
 
         // Insert a correction factor of sequence length
-        double score = c.getScore() - Utils.prob2LogOdd(sequenceLength);
+        double score = hitScore[k] - Utils.prob2LogOdd(sequenceLength);
 
         if(score < hmm.getGa2()){ // test if it is a valid score
             return hitList;
         }
 
-        int row = c.getRow();
-        int endModel = c.getRow();
-        int col = c.getCol();
-        int endAlignment = c.getCol();
+        int endModel = hitRows[2 * k];
+        int endAlignment = hitCols[2 * k];
 
-        while ((c = dpmatrix_score[row][col].getPrevCell())!= null ) {
-            row = c.getRow();
-            col = c.getCol();
-        }
+        // start of the path
+        int row = hitRows[2 * k + 1];
+        int col = hitCols[2 * k + 1];
 
         int realStartAlignment;
         int realEndAlignment;
@@ -638,23 +590,20 @@ public class DyPMatrix {
         return hitList;
     }
 
-    private List<Hit> scoreConstitutiveHitPath(List<Hit> hitList, DyPCell c, Transcript t, List<ASEvent> events) {
+    private List<Hit> scoreConstitutiveHitPath(List<Hit> hitList, int k, Transcript t, List<ASEvent> events) {
         // Insert a correction factor of sequence length
-        double score = c.getScore() - Utils.prob2LogOdd(sequenceLength);
+        double score = hitScore[k] - Utils.prob2LogOdd(sequenceLength);
 
         if(score < hmm.getGa2()){ // test if it is a valid score
             return hitList;
         }
 
-        int row = c.getRow();
-        int endModel = c.getRow();
-        int col = c.getCol();
-        int endAlignment = c.getCol();
+        int endModel = hitRows[2 * k];
+        int endAlignment = hitCols[2 * k];
 
-        while ((c = dpmatrix_score[row][col].getPrevCell())!= null ) {
-            row = c.getRow();
-            col = c.getCol();
-        }
+        // start of the path
+        int row = hitRows[2 * k + 1];
+        int col = hitCols[2 * k + 1];
 
         int realStartAlignment;
         int realEndAlignment;
@@ -776,15 +725,37 @@ public class DyPMatrix {
     }
 
     /**
-     * Print score matrix.
+     *
+     * @return Number of possible hits of the last alignment.
+     */
+    int getHitCount() {
+        return nrHits;
+    }
+
+    /**
+     * @param k Index of the possible hit.
+     * @return Bit score of the possible hit, corrected for the sequence length.
+     */
+    double getHitScore(int k) {
+        return hitScore[k] - Utils.prob2LogOdd(sequenceLength);
+    }
+
+    /**
+     * @param k Index of the possible hit.
+     * @return Model positions where the possible hit starts and ends, followed by the
+     * sequence positions where it starts and ends.
+     */
+    int[] getHitRegion(int k) {
+        return new int[] {hitRows[2 * k + 1], hitRows[2 * k], hitCols[2 * k + 1], hitCols[2 * k]};
+    }
+
+    /**
+     * Print possible hits, i.e. the score matrix cells where alignments end.
      */
     public void getScoreMatrix(){
-            for(DyPCell[] row: dpmatrix_score){
-                for(DyPCell c: row){
-                    System.out.print(c.getScore() + "\t");
-                }
-                System.out.println();
-            }
+        for(int k = 0; k < nrHits; k++){
+            System.out.println(hitRows[2 * k] + "\t" + hitCols[2 * k] + "\t" + hitScore[k]);
+        }
     }
 
     /**
@@ -287,6 +287,11 @@ public class ProfileHMM {
      */
     private double[] optimumScoreArray;
 
+    /**
+     * Compiled log-odds scores, created on first use.
+     */
+    private volatile ScoringProfile scoringProfile;
+
 
     /**
      * The ProfileHMM constructor. It initializes the distributions and probabilities matrices.
@@ -392,6 +397,7 @@ public class ProfileHMM {
      */
     public void setMatchEmissionMatrix(double[][] matchEmissionMatrix) {
         this.matchEmissionMatrix = matchEmissionMatrix;
+        this.scoringProfile = null;
     }
 
     /**
@@ -408,6 +414,7 @@ public class ProfileHMM {
      */
     public void setInsertEmissionMatrix(double[][] insertEmissionMatrix) {
         this.insertEmissionMatrix = insertEmissionMatrix;
+        this.scoringProfile = null;
     }
 
     /**
@@ -424,6 +431,7 @@ public class ProfileHMM {
      */
     public void setStateTransitionMatrix(double[][] stateTransitionMatrix) {
         this.stateTransitionMatrix = stateTransitionMatrix;
+        this.scoringProfile = null;
     }
 
     /**
@@ -737,6 +745,7 @@ public class ProfileHMM {
      */
     public void setAlphabet(String alphabet) {
         this.alphabet = alphabet;
+        this.scoringProfile = null;
     }
 
     /**
@@ -830,6 +839,17 @@ public class ProfileHMM {
         return optimumScoreArray[temp] - optimumScoreArray[i];
     }
 
+    /**
+     * Provides the log-odds scores of the model, compiled once on first access.
+     * @return Scoring profile.
+     */
+    public ScoringProfile getScoringProfile() {
+        ScoringProfile p = scoringProfile;
+        if (p == null)
+            scoringProfile = p = new ScoringProfile(this);
+        return p;
+    }
+
     /**
      * @param optimumScoreArray Optimum score array to set.
      */
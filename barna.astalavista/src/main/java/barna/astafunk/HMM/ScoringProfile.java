@@ -0,0 +1,179 @@
+package barna.astafunk.HMM;
+
+import barna.astafunk.utils.Utils;
+
+/**
+ * Log-odds scores of a profile HMM compiled for the dynamic programming kernels.
+ * Transition and emission bit scores are computed once per model, residues are
+ * encoded to alphabet indexes before an alignment.
+ * Instances are immutable and may be shared by concurrent alignments.
+ * @see ProfileHMM#getScoringProfile()
+ */
+public class ScoringProfile {
+
+    /**
+     * Null transition probability (hmmer3.1 code).
+     */
+    public static final double P1 = 0.997151;
+
+    /**
+     * Number of transitions per node.
+     */
+    public static final int TRANSITIONS = 7;
+
+    /**
+     * Number of match states.
+     */
+    private final int length;
+
+    /**
+     * Alphabet size.
+     */
+    private final int size;
+
+    /**
+     * Alphabet index by character, <code>-1</code> for invalid residues.
+     */
+    private final byte[] codes = new byte[128];
+
+    /**
+     * Transition bit scores, <code>TRANSITIONS</code> per node and indexed by
+     * {@link ProfileHMM#MM} ... {@link ProfileHMM#DD}.
+     */
+    private final double[] tsc;
+
+    /**
+     * Match emission log-odds, <code>size</code> per node.
+     */
+    private final double[] msc;
+
+    /**
+     * Insert emission log-odds, <code>size</code> per node.
+     */
+    private final double[] isc;
+
+    /**
+     * Expected number of J states.
+     */
+    private final int nj;
+
+    /**
+     * Compiles the scores of a profile HMM.
+     * @param hmm the profile HMM
+     */
+    ScoringProfile(ProfileHMM hmm) {
+
+        length = hmm.getLength();
+        nj = hmm.nj;
+
+        char[] alphabet = hmm.getAlphabet();
+        size = alphabet.length;
+        for (int i = 0; i < codes.length; i++)
+            codes[i] = -1;
+        for (int a = 0; a < alphabet.length; a++)
+            codes[alphabet[a]] = (byte) a;
+
+        double[][] stateMatrix = hmm.getStateTransitionMatrix();
+        double[][] matchMatrix = hmm.getMatchEmissionMatrix();
+        double[][] insertMatrix = hmm.getInsertEmissionMatrix();
+        double[] nullProbArray = hmm.getNullModel();
+
+        tsc = new double[(length + 1) * TRANSITIONS];
+        msc = new double[(length + 1) * size];
+        isc = new double[(length + 1) * size];
+        for (int k = 0; k <= length; k++) {
+            for (int t = 0; t < TRANSITIONS; t++)
+                tsc[k * TRANSITIONS + t] = Utils.prob2LogOdd(stateMatrix[k][t]);
+            for (int a = 0; a < size; a++) {
+                double nullProb = nullProbArray[a] * P1;
+                msc[k * size + a] = Utils.prob2LogOdd(matchMatrix[k][a], nullProb);
+                isc[k * size + a] = Utils.prob2LogOdd(insertMatrix[k][a], nullProb);
+            }
+        }
+    }
+
+    /**
+     * @return Number of match states.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Alphabet size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Encodes a sequence to alphabet indexes.
+     * @param sequence the residues
+     * @param dst array for the indexes, at least as long as the sequence
+     * @throws IllegalArgumentException if the sequence contains a residue that is not in the alphabet
+     */
+    public void encode(CharSequence sequence, byte[] dst) {
+        for (int j = 0; j < sequence.length(); j++) {
+            char c = sequence.charAt(j);
+            byte code = c < codes.length ? codes[c] : -1;
+            if (code < 0)
+                throw new IllegalArgumentException("Invalid residue " + c + " at position " + (j + 1));
+            dst[j] = code;
+        }
+    }
+
+    /**
+     * @param k node
+     * @param transition one of {@link ProfileHMM#MM} ... {@link ProfileHMM#DD}
+     * @return Transition bit score.
+     */
+    public double getTransitionScore(int k, int transition) {
+        return tsc[k * TRANSITIONS + transition];
+    }
+
+    /**
+     * @return Transition bit scores, <code>TRANSITIONS</code> per node.
+     */
+    public double[] getTransitionScores() {
+        return tsc;
+    }
+
+    /**
+     * @return Match emission log-odds, <code>getSize()</code> per node.
+     */
+    public double[] getMatchScores() {
+        return msc;
+    }
+
+    /**
+     * @return Insert emission log-odds, <code>getSize()</code> per node.
+     */
+    public double[] getInsertScores() {
+        return isc;
+    }
+
+    /**
+     * Score of N, C and J state loops for a target sequence, without
+     * reconfiguring the shared model.
+     * @param L length of the target sequence
+     * @return Loop score.
+     * @see ProfileHMM#reconfigLength(int)
+     */
+    public double getLoopScore(int L) {
+        double pmove = (2.0f + (double) nj) / ((double) L + 2.0f + nj);
+        double ploop = 1.0f - pmove;
+        return Math.log(ploop);
+    }
+
+    /**
+     * Score of N, C and J state moves for a target sequence, without
+     * reconfiguring the shared model.
+     * @param L length of the target sequence
+     * @return Move score.
+     * @see ProfileHMM#reconfigLength(int)
+     */
+    public double getMoveScore(int L) {
+        double pmove = (2.0f + (double) nj) / ((double) L + 2.0f + nj);
+        return Math.log(pmove);
+    }
+}
@@ -172,6 +172,7 @@ public abstract class AStalavista implements Tool<Void> {
 //        if (readAheadLimit> 0)
 //            reader.setReadAheadLimit(readAheadLimit);
         reader.setNoIDs(null);
+        reader.setUseCache(settings.get(AStalavistaSettings.ANNOTATION_CACHE));
         return reader;
     }
 
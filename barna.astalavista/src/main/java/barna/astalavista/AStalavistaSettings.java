@@ -116,6 +116,14 @@ public class AStalavistaSettings extends ParameterSchema /*GTFschema*/ {
         }
     }).longOption("tmp");
 
+    /**
+     * Read the input annotation from a binary cache, which is compiled
+     * next to the input file and reused as long as the file does not change.
+     */
+    public static final Parameter<Boolean> ANNOTATION_CACHE = Parameters.booleanParameter("ANNOTATION_CACHE",
+            "Read the annotation from a binary cache that is compiled with the first run",
+            false).longOption("annotation-cache");
+
     /**
      * Checks whether a folder with genomic sequences is necessary in order
      * to complete all tasks specified with <code>this</code> parameter set.
@@ -323,7 +323,7 @@ public class EventExtractor extends SplicingGraph implements Runnable {
                                         refs = ss[h][1]; // next in chain
                                 }
 
-                                SpliceSite subs = softStartHash.get(refs);
+                                SpliceSite subs = refs == null ? null : softStartHash.get(getSiteKey(refs));
                                 if (subs != null && ss[h][0].getSourceType() > Transcript.getEdgeConfidenceLevel()) {    //ss[h][0].getType()== SpliceSite.TYPE_SOFT_START) {
 //									for (int j = 1; j < tt[h].length; j++) {
 //										if (tt[h][j].getSpliceSitesAll()[0].getPos()< ss[h][0].getPos())
@@ -351,7 +351,7 @@ public class EventExtractor extends SplicingGraph implements Runnable {
                                     } else
                                         refs = ss[h][ss[h].length - 2]; // prev in chain
                                 }
-                                subs = softEndHash.get(refs);
+                                subs = refs == null ? null : softEndHash.get(getSiteKey(refs));
                                 if (subs != null && ss[h][ss[h].length - 1].getSourceType() > Transcript.getEdgeConfidenceLevel()) {        //getType()== SpliceSite.TYPE_SOFT_END) {
 //									for (int j = 1; j < tt[h].length; j++) {
 //										if (tt[h][j].getSpliceSitesAll()[tt[h][j].getSpliceSitesAll().length- 1].getPos()> ss[h][ss[h].length- 1].getPos())
@@ -445,7 +445,6 @@ public class EventExtractor extends SplicingGraph implements Runnable {
         if (nodeHash.size() == 0)
             return;
         Node[] nodes = getNodesInGenomicOrder();
-        long[] inter;
 
         /*
 		 * 080821: parameter to skip edge bubbles, skip all bubbles with src/snk=root/leaf
@@ -529,8 +528,7 @@ public class EventExtractor extends SplicingGraph implements Runnable {
                     updatePartitions(splitPathes, partitions, partitionSets);
 
                 // stop
-                inter = intersect(nodes[j].getTranscripts(), nodes[i].getTranscripts());
-                if (equalSet(inter, nodes[i].getTranscripts())) {
+                if (containsAll(nodes[j].getTranscripts(), nodes[i].getTranscripts())) {
                     boolean valid = true;
                     if (outputCDS) {
                         // this heuristic does not work
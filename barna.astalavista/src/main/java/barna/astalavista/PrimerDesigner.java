@@ -36,6 +36,7 @@ import barna.model.splicegraph.SimpleEdge;
 import barna.model.splicegraph.SplicingGraph;
 
 import java.util.HashMap;
+import java.util.Iterator;
 
 public class PrimerDesigner {
 
@@ -116,7 +117,9 @@ public class PrimerDesigner {
     private static HashMap<long[], Integer> get(SplicingGraph gr) {
         // output features of the full graph
         HashMap<long[], Integer> map= new HashMap<long[], Integer>(gr.trpts.length* gr.trpts.length);
-        for (SimpleEdge e : gr.getEdgeHash().values()) {
+        Iterator<SimpleEdge> iter= gr.getEdgeHash().values();
+        while (iter.hasNext()) {
+            SimpleEdge e= iter.next();
             if (!e.isExonic())
                 continue;
             long[] sig= e.getTranscripts();
@@ -142,7 +142,7 @@ public class ProteinAnnotator {
 			int objCtr= 0;
 			for (reader.read(); (obj= reader.getGtfObj())!= null; reader.read()) {
 				for (int i = 0; i < obj.length; i++) {
-					String s= (String) obj[i].getAttributes().remove(ATTRIBUTE_DOMAIN_EVENT);
+					String s= obj[i].getAttributes().remove(ATTRIBUTE_DOMAIN_EVENT);
 					if (s!= null) {
 						String[] sx= s.split("/");
 						StringBuffer sb= new StringBuffer();
@@ -0,0 +1,85 @@
+package barna.astafunk.DP;
+
+import barna.astafunk.HMM.ProfileHMM;
+import barna.astafunk.parser.HMMParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DyPMatrixTest {
+
+    /**
+     * Model 1-cysPrx_C (PF10417.5) with 40 nodes.
+     */
+    private static ProfileHMM hmm;
+
+    /**
+     * Consensus of the model, and the first 25 residues of the consensus, in some flanking sequence.
+     */
+    private static final String SEQUENCE = "MSKGLTEW"
+            + "ALQLADKHGVATPANWKPGDKVIVPPPATEEEAVKRYLEG"
+            + "GNPRSTDEKVLAAW"
+            + "ALQLADKHGVATPANWKPGDKVIVP"
+            + "HHGSKT";
+
+    @BeforeClass
+    public static void readModel() throws Exception {
+        hmm = new HMMParser(new File(DyPMatrixTest.class.getResource("/test.hmm").getFile()).getAbsolutePath()).parse();
+        assertEquals("1-cysPrx_C", hmm.getName().trim());
+        assertEquals(40, hmm.getLength());
+    }
+
+    /**
+     * Returns the index of the best possible hit that starts at or after a sequence position.
+     */
+    private static int best(DyPMatrix m, int fromCol) {
+        int best = -1;
+        for (int k = 0; k < m.getHitCount(); k++) {
+            assertTrue(m.getHitScore(k) >= hmm.getGa2());
+            if (m.getHitRegion(k)[2] >= fromCol && (best < 0 || m.getHitScore(k) > m.getHitScore(best)))
+                best = k;
+        }
+        return best;
+    }
+
+    @Test
+    public void testAlignSequenceBnB() {
+        DyPMatrix m = new DyPMatrix(SEQUENCE, hmm);
+        m.alignSequenceBnB();
+        assertEquals(63, m.getHitCount());
+
+        // glocal hits span the whole model
+        int k = best(m, 1);
+        assertArrayEquals(new int[] {1, 40, 9, 48}, m.getHitRegion(k));
+        assertEquals(92.20257953573795, m.getHitScore(k), 1e-9);
+        k = best(m, 50);
+        assertArrayEquals(new int[] {1, 40, 63, 93}, m.getHitRegion(k));
+        assertEquals(41.96299775662371, m.getHitScore(k), 1e-9);
+    }
+
+    @Test
+    public void testAlignSequenceLocal() {
+        DyPMatrix m = new DyPMatrix(SEQUENCE, hmm);
+        m.alignSequenceLocal();
+        assertEquals(1546, m.getHitCount());
+
+        int k = best(m, 1);
+        assertArrayEquals(new int[] {1, 40, 9, 48}, m.getHitRegion(k));
+        assertEquals(92.20257953573795, m.getHitScore(k), 1e-9);
+        // local hit of the truncated copy
+        k = best(m, 50);
+        assertArrayEquals(new int[] {1, 25, 63, 87}, m.getHitRegion(k));
+        assertEquals(60.12377412835891, m.getHitScore(k), 1e-9);
+
+        // the matrix is reused for another sequence
+        m.initializeNewSequence(SEQUENCE.substring(62));
+        m.alignSequenceLocal();
+        k = best(m, 1);
+        assertArrayEquals(new int[] {1, 25, 1, 25}, m.getHitRegion(k));
+    }
+}
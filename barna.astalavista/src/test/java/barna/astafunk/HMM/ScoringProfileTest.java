@@ -0,0 +1,72 @@
+package barna.astafunk.HMM;
+
+import barna.astafunk.utils.Utils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ScoringProfileTest {
+
+    private static ProfileHMM createModel(int length) {
+        ProfileHMM hmm = new ProfileHMM(length);
+        hmm.setAlphabet("amino");
+        double[][] match = new double[length + 1][20];
+        double[][] insert = new double[length + 1][20];
+        double[][] state = new double[length + 1][7];
+        for (int k = 0; k <= length; k++) {
+            for (int a = 0; a < 20; a++) {
+                match[k][a] = (a + k + 1) / 300d;
+                insert[k][a] = 1 / 20d;
+            }
+            state[k] = new double[] {0.9, 0.05, 0.05, 0.5, 0.5, 0.7, 0.3};
+        }
+        match[1][3] = 0;
+        hmm.setMatchEmissionMatrix(match);
+        hmm.setInsertEmissionMatrix(insert);
+        hmm.setStateTransitionMatrix(state);
+        return hmm;
+    }
+
+    @Test
+    public void testScores() {
+        ProfileHMM hmm = createModel(3);
+        ScoringProfile profile = hmm.getScoringProfile();
+        double[] nullModel = hmm.getNullModel();
+
+        assertEquals(20, profile.getSize());
+        for (int k = 0; k <= 3; k++) {
+            for (int t = 0; t < ScoringProfile.TRANSITIONS; t++)
+                assertEquals(Utils.prob2LogOdd(hmm.getStateTransitionMatrix()[k][t]), profile.getTransitionScore(k, t), 0);
+            for (int a = 0; a < 20; a++) {
+                double nullProb = nullModel[a] * ScoringProfile.P1;
+                assertEquals(Utils.prob2LogOdd(hmm.getMatchEmissionMatrix()[k][a], nullProb),
+                        profile.getMatchScores()[k * 20 + a], 0);
+                assertEquals(Utils.prob2LogOdd(hmm.getInsertEmissionMatrix()[k][a], nullProb),
+                        profile.getInsertScores()[k * 20 + a], 0);
+            }
+        }
+
+        hmm.reconfigLength(250);
+        assertEquals(hmm.xsc[ProfileHMM.N][ProfileHMM.LOOP], profile.getLoopScore(250), 0);
+        assertEquals(hmm.xsc[ProfileHMM.N][ProfileHMM.MOVE], profile.getMoveScore(250), 0);
+    }
+
+    @Test
+    public void testEncode() {
+        ScoringProfile profile = createModel(2).getScoringProfile();
+        byte[] codes = new byte[4];
+        profile.encode("ACWY", codes);
+        assertEquals(0, codes[0]);
+        assertEquals(1, codes[1]);
+        assertEquals(18, codes[2]);
+        assertEquals(19, codes[3]);
+
+        try {
+            profile.encode("AXC", codes);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -5,6 +5,10 @@ import barna.io.FileHelper;
 import barna.io.gtf.GTFwrapper;
 import barna.model.ASEvent;
 import barna.model.Gene;
+import barna.model.SpliceSite;
+import barna.model.Transcript;
+import barna.model.splicegraph.Node;
+import barna.model.splicegraph.SimpleEdge;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -12,9 +16,15 @@ import static org.junit.Assert.*;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Vector;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created with IntelliJ IDEA.
@@ -100,5 +110,67 @@ public class EventExtractorTest {
         assertEquals("1],2]", v.elementAt(0).toString());
     }
 
+    /**
+     * Compares the primitive-keyed node and edge tables of the splicing graphs
+     * to maps keyed by sites, resp. by the site strings of the former tables.
+     */
+    @Test
+    public void testNodeAndEdgeLookup() throws Exception {
+        File gtf= FileHelper.createTempFile(EventExtractorTest.class.getName(), ".gtf");
+        InputStream in= new GZIPInputStream(getClass().getResourceAsStream("/gencode.v19.chr19.annotation.gtf.gz"));
+        OutputStream out= new FileOutputStream(gtf);
+        byte[] buf= new byte[8192];
+        for (int n; (n= in.read(buf))>= 0; )
+            out.write(buf, 0, n);
+        in.close();
+        out.close();
+
+        GTFwrapper reader= new GTFwrapper(gtf);
+        AStaSettings settings= new AStaSettings();
+        int nrGenes= 0, nrEdges= 0;
+        for (reader.read(); reader.getGenes()!= null; reader.read()) {
+            Gene[] ge= reader.getGenes();
+            for (int i = 0; i < ge.length; i++) {
+                EventExtractor extractor= new EventExtractor(ge[i], settings);
+                extractor.constructGraph();
+
+                HashMap<SpliceSite, Node> nodes= new HashMap<SpliceSite, Node>();
+                Iterator<Node> iterNode= extractor.nodeHash.values();
+                while (iterNode.hasNext()) {
+                    Node n= iterNode.next();
+                    assertNull(nodes.put(n.getSite(), n));
+                }
+                Transcript[] t= ge[i].getTranscripts();
+                for (int j = 0; j < t.length; j++) {
+                    SpliceSite[] ss= t[j].getSpliceSitesAll();
+                    for (int k = 0; k < ss.length; k++)
+                        assertSame(nodes.get(ss[k]), extractor.getNode(ss[k]));
+                }
+
+                // edges from the adjacency lists
+                HashMap<String, SimpleEdge> edges= new HashMap<String, SimpleEdge>();
+                Node[] n= extractor.getNodesInGenomicOrder();
+                for (int j = 0; j < n.length; j++) {
+                    for (SimpleEdge e : n[j].getOutEdges()) {
+                        String key= e.getTail().getSite().toString()+ e.getHead().getSite().toString()+ (e.isExonic()? "1": "0");
+                        assertNull(edges.put(key, e));
+                        assertSame(e, extractor.getEdge(e.getTail(), e.getHead(), e.isExonic()));
+                    }
+                }
+                assertEquals(edges.size(), extractor.getEdgeHash().size());
+                Iterator<SimpleEdge> iterEdge= extractor.getEdgeHash().values();
+                while (iterEdge.hasNext()) {
+                    SimpleEdge e= iterEdge.next();
+                    assertSame(e, edges.get(e.getTail().getSite().toString()+ e.getHead().getSite().toString()+ (e.isExonic()? "1": "0")));
+                }
+                ++nrGenes;
+                nrEdges+= edges.size();
+            }
+        }
+        gtf.delete();
+        assertTrue(nrGenes> 1000);
+        assertTrue(nrEdges> nrGenes);
+    }
+
 
 }